@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
+import ru.ok.newyear.newyear.service.EncoderService;
 import ru.ok.newyear.newyear.utils.Files;
 
 import javax.imageio.ImageIO;
@@ -16,10 +17,10 @@ public class Drawer {
 
     private static final Logger logger = LoggerFactory.getLogger(Drawer.class);
 
-    private static final String READY = "ready";
+    public static final String READY = "ready";
 
     @Nullable
-    public static File drawOverImage(@NonNull File background, @NonNull Draw draw) {
+    public static File drawOverImage(@NonNull File background, @NonNull Draw draw, @NonNull EncoderService encoderService) {
         BufferedImage backgroundImage;
         try {
             backgroundImage = ImageIO.read(background);
@@ -47,14 +48,20 @@ public class Drawer {
                 graphics.dispose();
                 return null;
         }
-        Files.createDirectory(new File(READY));
-        File file = new File(READY, String.format("%d.jpg", System.currentTimeMillis()));
+        graphics.dispose();
+        File ready = new File(READY);
+        Files.createDirectory(ready);
+        File file;
         try {
-            ImageIO.write(backgroundImage, "jpg", file);
+            file = File.createTempFile(String.format("%d-", System.currentTimeMillis()), ".jpg", ready);
         } catch (IOException e) {
-            logger.error(String.format("Can't save image to %s", file.getPath()), e);
+            logger.error(String.format("Can't create file in %s", ready.getPath()), e);
+            return null;
+        }
+        if (!encoderService.encode(backgroundImage, file)) {
+            Files.delete(file);
+            return null;
         }
-        graphics.dispose();
         return file;
     }
 
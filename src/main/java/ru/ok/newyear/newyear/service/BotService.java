@@ -3,6 +3,8 @@ package ru.ok.newyear.newyear.service;
 import chat.tamtam.botapi.TamTamBotAPI;
 import chat.tamtam.botapi.TamTamUploadAPI;
 import chat.tamtam.botapi.client.TamTamClient;
+import chat.tamtam.botapi.client.impl.JacksonSerializer;
+import chat.tamtam.botapi.client.impl.OkHttpTransportClient;
 import chat.tamtam.botapi.exceptions.APIException;
 import chat.tamtam.botapi.exceptions.AttachmentNotReadyException;
 import chat.tamtam.botapi.exceptions.ClientException;
@@ -24,6 +26,7 @@ import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import ru.ok.newyear.newyear.draw.Draw;
 import ru.ok.newyear.newyear.draw.Drawer;
+import ru.ok.newyear.newyear.utils.Files;
 import ru.ok.newyear.newyear.utils.Properties;
 import ru.ok.newyear.newyear.utils.Texts;
 
@@ -48,14 +51,19 @@ public class BotService implements DisposableBean, Update.Visitor {
     public static final String ERROR_TRY_LATER_TEXT = "Возникла ошибка. Попробуйте позже";
 
     private final DownloaderService downloaderService;
+    private final EncoderService encoderService;
     private final TamTamBotAPI botAPI;
     private final TamTamUploadAPI uploadAPI;
     private Disposable updateDisposable;
 
-    public BotService(@NonNull DownloaderService downloaderService, @NonNull @Value("${ny.bot.token}") String botToken) {
+    public BotService(@NonNull DownloaderService downloaderService,
+                      @NonNull EncoderService encoderService,
+                      @NonNull @Value("${ny.bot.token}") String botToken,
+                      @NonNull @Value("${ny.bot.endpoint}") String endpoint) {
         logger.info("Init bot service");
         this.downloaderService = downloaderService;
-        TamTamClient client = TamTamClient.create(botToken);
+        this.encoderService = encoderService;
+        TamTamClient client = createClient(botToken, endpoint);
         botAPI = new TamTamBotAPI(client);
         uploadAPI = new TamTamUploadAPI(client);
         infinityCheckUpdates();
@@ -70,9 +78,27 @@ public class BotService implements DisposableBean, Update.Visitor {
         }
     }
 
+    /**
+     * Empty endpoint means the default TamTam Bot API. Otherwise all requests go to the given
+     * endpoint, e.g. to a local stand-in for load tests.
+     */
+    @NonNull
+    private static TamTamClient createClient(@NonNull String botToken, @NonNull String endpoint) {
+        if (Texts.isEmpty(endpoint)) {
+            return TamTamClient.create(botToken);
+        }
+        logger.info("Use bot api endpoint {}", endpoint);
+        return new TamTamClient(botToken, new OkHttpTransportClient(), new JacksonSerializer()) {
+            @Override
+            public String getEndpoint() {
+                return endpoint;
+            }
+        };
+    }
+
     private void infinityCheckUpdates() {
         updateDisposable = Observable.create((ObservableOnSubscribe<List<Update>>) emitter -> {
-            while (true) {
+            while (!emitter.isDisposed()) {
                 emitter.onNext(getUpdates());
             }
         })
@@ -162,7 +188,7 @@ public class BotService implements DisposableBean, Update.Visitor {
             sendText(chatId, MAGIC_ON_PHOTO_TEXT);
             return;
         }
-        File result = Drawer.drawOverImage(file, Draw.random());
+        File result = Drawer.drawOverImage(file, Draw.random(), encoderService);
         if (result == null) {
             sendText(chatId, ERROR_TRY_LATER_TEXT);
             return;
@@ -193,6 +219,7 @@ public class BotService implements DisposableBean, Update.Visitor {
         logger.info("Photo tokens = {}", photoTokens);
         if (photoTokens == null) {
             logger.error("Photo tokes is empty");
+            Files.delete(file);
             return;
         }
         PhotoAttachmentRequestPayload photoAttachmentRequestPayload = new PhotoAttachmentRequestPayload();
@@ -221,6 +248,7 @@ public class BotService implements DisposableBean, Update.Visitor {
                 .observeOn(Schedulers.io())
                 .subscribeOn(Schedulers.io())
                 .retryWhen((Flowable<Throwable> f) -> f.take(MAX_FILE_SEND_ERROR_COUNT).delay(FILE_SEND_RETRY_TIMEOUT, TimeUnit.MILLISECONDS))
+                .doFinally(() -> Files.delete(file))
                 .subscribe(() -> logger.info("Finish sending file. chatId = {}", chatId),
                         throwable -> logger.error("To many send errors. Can't send", throwable));
         compositeDisposable.add(disposable);
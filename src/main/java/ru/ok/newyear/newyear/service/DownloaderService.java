@@ -20,7 +20,7 @@ public class DownloaderService {
 
     private static final Logger logger = LoggerFactory.getLogger(DownloaderService.class);
 
-    private static final String DOWNLOADS = "downloads";
+    public static final String DOWNLOADS = "downloads";
     private final OkHttpClient client;
 
     public DownloaderService() {
@@ -35,6 +35,9 @@ public class DownloaderService {
         File file = new File(DOWNLOADS, String.format("%d.jpg", hashCode));
         if (file.exists()) {
             logger.info("File {} already downloaded. Skip", url);
+            if (!file.setLastModified(System.currentTimeMillis())) {
+                logger.error("Can't touch file {}", file.getPath());
+            }
             return file;
         }
         File downloads = new File(DOWNLOADS);
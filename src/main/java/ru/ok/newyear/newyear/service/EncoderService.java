@@ -0,0 +1,185 @@
+package ru.ok.newyear.newyear.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+@Service
+public class EncoderService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(EncoderService.class);
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+    private static final float QUALITY_STEP = 0.1f;
+
+    private final BlockingQueue<Encoder> encoders;
+    private final float quality;
+    private final float minQuality;
+    private final long maxSize;
+    private final Subsampling subsampling;
+    private final boolean optimizeHuffman;
+    private final boolean progressive;
+
+    public EncoderService(@Value("${ny.jpeg.pool-size}") int poolSize,
+                          @Value("${ny.jpeg.quality}") float quality,
+                          @Value("${ny.jpeg.min-quality}") float minQuality,
+                          @Value("${ny.jpeg.max-size}") long maxSize,
+                          @NonNull @Value("${ny.jpeg.subsampling}") Subsampling subsampling,
+                          @Value("${ny.jpeg.optimize-huffman}") boolean optimizeHuffman,
+                          @Value("${ny.jpeg.progressive}") boolean progressive) {
+        logger.info("Init encoder service");
+        checkQuality("ny.jpeg.quality", quality);
+        checkQuality("ny.jpeg.min-quality", minQuality);
+        this.encoders = new ArrayBlockingQueue<>(Math.max(poolSize, 1));
+        this.quality = quality;
+        this.minQuality = Math.min(minQuality, quality);
+        this.maxSize = maxSize;
+        this.subsampling = subsampling;
+        this.optimizeHuffman = optimizeHuffman;
+        this.progressive = progressive;
+    }
+
+    private static void checkQuality(@NonNull String name, float quality) {
+        if (quality < 0 || quality > 1) {
+            throw new IllegalArgumentException(String.format("%s must be in [0, 1], got %s", name, quality));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        logger.info("Destroy encoder service");
+        Encoder encoder;
+        while ((encoder = encoders.poll()) != null) {
+            encoder.writer.dispose();
+        }
+    }
+
+    /**
+     * Encodes image to jpeg and saves it to file. If result is bigger than {@code ny.jpeg.max-size}
+     * quality is lowered step by step until it fits or {@code ny.jpeg.min-quality} is reached.
+     */
+    public boolean encode(@NonNull BufferedImage image, @NonNull File file) {
+        Encoder encoder = acquireEncoder();
+        if (encoder == null) {
+            logger.error("No jpeg writer available");
+            return false;
+        }
+        ByteArrayOutputStream buffer = encoder.buffer;
+        try {
+            float currentQuality = quality;
+            while (true) {
+                buffer.reset();
+                write(encoder.writer, image, currentQuality, buffer);
+                if (maxSize <= 0 || buffer.size() <= maxSize || currentQuality <= minQuality) {
+                    break;
+                }
+                logger.info("Jpeg size {} exceeds limit {} at quality {}", buffer.size(), maxSize, currentQuality);
+                currentQuality = Math.max(currentQuality - QUALITY_STEP, minQuality);
+            }
+            try (OutputStream output = new FileOutputStream(file)) {
+                buffer.writeTo(output);
+            }
+            logger.info("Encoded {} bytes to {} with quality {}", buffer.size(), file.getPath(), currentQuality);
+            return true;
+        } catch (IOException e) {
+            logger.error(String.format("Can't save image to %s", file.getPath()), e);
+            return false;
+        } finally {
+            releaseEncoder(encoder);
+        }
+    }
+
+    int getPooledWriterCount() {
+        return encoders.size();
+    }
+
+    private void write(@NonNull ImageWriter writer, @NonNull BufferedImage image, float quality, @NonNull OutputStream output) throws IOException {
+        JPEGImageWriteParam param = new JPEGImageWriteParam(null);
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        param.setOptimizeHuffmanTables(optimizeHuffman);
+        param.setProgressiveMode(progressive ? ImageWriteParam.MODE_DEFAULT : ImageWriteParam.MODE_DISABLED);
+        IIOMetadata metadata = buildMetadata(writer, image, param);
+        try (ImageOutputStream stream = new MemoryCacheImageOutputStream(output)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, metadata), param);
+        } finally {
+            writer.reset();
+        }
+    }
+
+    @NonNull
+    private IIOMetadata buildMetadata(@NonNull ImageWriter writer, @NonNull BufferedImage image, @NonNull ImageWriteParam param) throws IIOInvalidTreeException {
+        IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(JPEG_METADATA_FORMAT);
+        NodeList components = root.getElementsByTagName("componentSpec");
+        for (int i = 0; i < components.getLength(); i++) {
+            IIOMetadataNode component = (IIOMetadataNode) components.item(i);
+            boolean luma = i == 0;
+            component.setAttribute("HsamplingFactor", String.valueOf(luma ? subsampling.horizontal : 1));
+            component.setAttribute("VsamplingFactor", String.valueOf(luma ? subsampling.vertical : 1));
+        }
+        metadata.setFromTree(JPEG_METADATA_FORMAT, root);
+        return metadata;
+    }
+
+    @Nullable
+    private Encoder acquireEncoder() {
+        Encoder encoder = encoders.poll();
+        if (encoder != null) {
+            return encoder;
+        }
+        Iterator<ImageWriter> iterator = ImageIO.getImageWritersByFormatName("jpg");
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        logger.info("Create new jpeg writer");
+        return new Encoder(iterator.next());
+    }
+
+    private void releaseEncoder(@NonNull Encoder encoder) {
+        if (!encoders.offer(encoder)) {
+            encoder.writer.dispose();
+        }
+    }
+
+    /**
+     * Pooled writer together with its output buffer, so retained buffers are bounded by {@code ny.jpeg.pool-size}.
+     */
+    private static class Encoder {
+
+        final ImageWriter writer;
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        Encoder(@NonNull ImageWriter writer) {
+            this.writer = writer;
+        }
+    }
+
+}
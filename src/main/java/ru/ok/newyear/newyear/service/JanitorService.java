@@ -0,0 +1,92 @@
+package ru.ok.newyear.newyear.service;
+
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import ru.ok.newyear.newyear.draw.Drawer;
+import ru.ok.newyear.newyear.utils.Files;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically removes files from {@code ready/} and {@code downloads/} that are older than
+ * {@code ny.janitor.max-age}, then the oldest ones until each directory fits into {@code ny.janitor.max-size}.
+ */
+@Service
+public class JanitorService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(JanitorService.class);
+
+    private static final String[] DIRECTORIES = {Drawer.READY, DownloaderService.DOWNLOADS};
+
+    private final long maxAge;
+    private final long maxSize;
+    private final Disposable cleanDisposable;
+
+    public JanitorService(@Value("${ny.janitor.period}") long period,
+                          @Value("${ny.janitor.max-age}") long maxAge,
+                          @Value("${ny.janitor.max-size}") long maxSize) {
+        logger.info("Init janitor service");
+        this.maxAge = TimeUnit.SECONDS.toMillis(maxAge);
+        this.maxSize = maxSize;
+        cleanDisposable = Observable.interval(period, period, TimeUnit.SECONDS, Schedulers.io())
+                .subscribe(tick -> clean(), throwable -> logger.error("Error while clean directories", throwable));
+    }
+
+    @Override
+    public void destroy() {
+        logger.info("Destroy janitor service");
+        cleanDisposable.dispose();
+    }
+
+    private void clean() {
+        for (String directory : DIRECTORIES) {
+            try {
+                clean(new File(directory));
+            } catch (RuntimeException e) {
+                logger.error(String.format("Can't clean directory %s", directory), e);
+            }
+        }
+    }
+
+    void clean(@NonNull File directory) {
+        File[] files = directory.listFiles(File::isFile);
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<File> kept = new ArrayList<>();
+        long size = 0;
+        for (File file : files) {
+            if (now - file.lastModified() > maxAge) {
+                Files.delete(file);
+            } else {
+                kept.add(file);
+                size += file.length();
+            }
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        logger.info("Directory {} size {} exceeds limit {}", directory.getPath(), size, maxSize);
+        kept.sort(Comparator.comparingLong(File::lastModified));
+        for (File file : kept) {
+            if (size <= maxSize) {
+                break;
+            }
+            size -= file.length();
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,17 @@
+package ru.ok.newyear.newyear.service;
+
+public enum Subsampling {
+
+    YUV420(2, 2),
+    YUV422(2, 1),
+    YUV444(1, 1);
+
+    public final int horizontal;
+    public final int vertical;
+
+    Subsampling(int horizontal, int vertical) {
+        this.horizontal = horizontal;
+        this.vertical = vertical;
+    }
+
+}
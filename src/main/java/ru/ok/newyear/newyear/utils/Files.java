@@ -23,4 +23,16 @@ public class Files {
             logger.error(String.format("Can't create directory %s", directory.getPath()), e);
         }
     }
+
+    public static void delete(@NonNull File file) {
+        try {
+            if (file.delete()) {
+                logger.info("File deleted {}", file.getPath());
+            } else if (file.exists()) {
+                logger.error("Can't delete file {}", file.getPath());
+            }
+        } catch (SecurityException e) {
+            logger.error(String.format("Can't delete file %s", file.getPath()), e);
+        }
+    }
 }
@@ -0,0 +1,162 @@
+package ru.ok.newyear.newyear.load;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import ru.ok.newyear.newyear.service.BotService;
+import ru.ok.newyear.newyear.service.DownloaderService;
+import ru.ok.newyear.newyear.service.EncoderService;
+import ru.ok.newyear.newyear.service.Subsampling;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Replays synthetic photo messages and bot starts against {@link FakeTamTamServer} at a target rate and
+ * reports end-to-end latency from update to delivered photo. Run with {@code ./gradlew loadTest}, tuning it
+ * with {@code -Dny.load.*} system properties.
+ */
+@Tag("load")
+class BotLoadTest implements FakeTamTamServer.Listener {
+
+	private static final Logger logger = LoggerFactory.getLogger(BotLoadTest.class);
+
+	private final int count = Integer.getInteger("ny.load.count", 500);
+	private final int rate = Integer.getInteger("ny.load.rate", 20);
+	private final long latency = Long.getLong("ny.load.latency", 50);
+	private final double tooManyRequestsRate = Double.parseDouble(System.getProperty("ny.load.too-many-requests-rate", "0"));
+	private final double attachmentNotReadyRate = Double.parseDouble(System.getProperty("ny.load.attachment-not-ready-rate", "0.3"));
+	private final double botStartedRate = Double.parseDouble(System.getProperty("ny.load.bot-started-rate", "0.1"));
+	private final long timeout = Long.getLong("ny.load.timeout", 120);
+
+	private final Map<Long, Long> startTimes = new ConcurrentHashMap<>();
+	private final Set<Long> botStartedChats = ConcurrentHashMap.newKeySet();
+	private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+	private final CountDownLatch finished = new CountDownLatch(count);
+	private final AtomicLong lastFinishTime = new AtomicLong();
+
+	@Test
+	void replayUpdates() throws Exception {
+		try (FakeTamTamServer server = new FakeTamTamServer(latency, tooManyRequestsRate, attachmentNotReadyRate, this)) {
+			EncoderService encoderService = createEncoderService();
+			BotService botService = new BotService(new DownloaderService(), encoderService, "token", server.getEndpoint());
+			long start = System.nanoTime();
+			long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+			Random random = new Random();
+			for (long chatId = 1; chatId <= count; chatId++) {
+				long next = start + (chatId - 1) * interval;
+				long sleep = next - System.nanoTime();
+				if (sleep > 0) {
+					TimeUnit.NANOSECONDS.sleep(sleep);
+				}
+				startTimes.put(chatId, System.nanoTime());
+				if (random.nextDouble() < botStartedRate) {
+					botStartedChats.add(chatId);
+					server.addBotStartedUpdate(chatId);
+				} else {
+					server.addMessageCreatedUpdate(chatId);
+				}
+			}
+			boolean completed = finished.await(timeout, TimeUnit.SECONDS);
+			long elapsed = lastFinishTime.get() - start;
+			botService.destroy();
+			encoderService.destroy();
+			if (!completed) {
+				logger.error("Only {} of {} updates finished in {} s", count - finished.getCount(), count, timeout);
+			}
+			report(elapsed);
+			assertFalse(latencies.isEmpty(), "No photo delivered");
+		}
+	}
+
+	@Override
+	public void onPhotoDelivered(long chatId) {
+		Long startTime = startTimes.remove(chatId);
+		if (startTime == null) {
+			return;
+		}
+		long now = System.nanoTime();
+		latencies.add(now - startTime);
+		finish(now);
+	}
+
+	@Override
+	public void onTextDelivered(long chatId) {
+		if (botStartedChats.contains(chatId)) {
+			// bot_started answers with the avatar photo and a hint text in any order
+			return;
+		}
+		if (startTimes.remove(chatId) == null) {
+			return;
+		}
+		logger.error("Chat {} got text instead of photo", chatId);
+		finish(System.nanoTime());
+	}
+
+	private void finish(long time) {
+		lastFinishTime.accumulateAndGet(time, Math::max);
+		finished.countDown();
+	}
+
+	/**
+	 * Builds the encoder with the same {@code ny.jpeg.*} settings the application uses.
+	 */
+	@NonNull
+	private static EncoderService createEncoderService() throws IOException {
+		Properties properties = new Properties();
+		try (InputStream input = BotLoadTest.class.getResourceAsStream("/application.properties")) {
+			properties.load(input);
+		}
+		return new EncoderService(
+				Integer.parseInt(properties.getProperty("ny.jpeg.pool-size")),
+				Float.parseFloat(properties.getProperty("ny.jpeg.quality")),
+				Float.parseFloat(properties.getProperty("ny.jpeg.min-quality")),
+				Long.parseLong(properties.getProperty("ny.jpeg.max-size")),
+				Subsampling.valueOf(properties.getProperty("ny.jpeg.subsampling")),
+				Boolean.parseBoolean(properties.getProperty("ny.jpeg.optimize-huffman")),
+				Boolean.parseBoolean(properties.getProperty("ny.jpeg.progressive")));
+	}
+
+	/**
+	 * Throughput is measured up to the last delivered or failed chat, so waiting for lost chats does not count.
+	 */
+	private void report(long elapsed) {
+		List<Long> sorted;
+		synchronized (latencies) {
+			sorted = new ArrayList<>(latencies);
+		}
+		Collections.sort(sorted);
+		double seconds = (double) elapsed / TimeUnit.SECONDS.toNanos(1);
+		double throughput = seconds > 0 ? sorted.size() / seconds : 0;
+		logger.info("Load test: updates = {} rate = {}/s bot started = {} api latency = {} ms 429 rate = {} not ready rate = {}",
+				count, rate, botStartedChats.size(), latency, tooManyRequestsRate, attachmentNotReadyRate);
+		logger.info("Load test: delivered = {} failed = {} lost = {}",
+				sorted.size(), count - finished.getCount() - sorted.size(), finished.getCount());
+		logger.info("Load test: p50 = {} ms p99 = {} ms throughput = {} photos/s",
+				percentile(sorted, 50), percentile(sorted, 99), String.format("%.2f", throughput));
+	}
+
+	private static long percentile(@NonNull List<Long> sorted, int percentile) {
+		if (sorted.isEmpty()) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+		return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(index, 0)));
+	}
+
+}
@@ -0,0 +1,197 @@
+package ru.ok.newyear.newyear.load;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.springframework.lang.NonNull;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the TamTam Bot API endpoints used by {@code BotService}:
+ * updates, upload url, upload, messages, chats and image hosting for attachments.
+ */
+class FakeTamTamServer extends Dispatcher implements Closeable {
+
+	private static final int UPDATES_LIMIT = 100;
+	private static final int LONG_POLL_TIMEOUT = 1000;
+	private static final int IMAGE_WIDTH = 1280;
+	private static final int IMAGE_HEIGHT = 960;
+
+	/**
+	 * Called for every message the bot successfully sends to a chat.
+	 */
+	interface Listener {
+		void onPhotoDelivered(long chatId);
+
+		void onTextDelivered(long chatId);
+	}
+
+	private final MockWebServer server = new MockWebServer();
+	private final BlockingQueue<String> updates = new LinkedBlockingQueue<>();
+	private final Map<Long, Boolean> notReadyChats = new ConcurrentHashMap<>();
+	private final AtomicLong marker = new AtomicLong();
+	private final AtomicLong tokens = new AtomicLong();
+	private final long run = System.currentTimeMillis();
+	private final byte[] image;
+	private final long latency;
+	private final double tooManyRequestsRate;
+	private final double attachmentNotReadyRate;
+	private final Listener listener;
+
+	FakeTamTamServer(long latency, double tooManyRequestsRate, double attachmentNotReadyRate, @NonNull Listener listener) throws IOException {
+		this.latency = latency;
+		this.tooManyRequestsRate = tooManyRequestsRate;
+		this.attachmentNotReadyRate = attachmentNotReadyRate;
+		this.listener = listener;
+		this.image = createImage();
+		server.setDispatcher(this);
+		server.start();
+	}
+
+	@NonNull
+	String getEndpoint() {
+		String url = server.url("/").toString();
+		return url.substring(0, url.length() - 1);
+	}
+
+	void addMessageCreatedUpdate(long chatId) {
+		String imageUrl = server.url("/images/" + run + "/" + chatId + ".jpg").toString();
+		long timestamp = System.currentTimeMillis();
+		updates.add("{\"update_type\":\"message_created\",\"timestamp\":" + timestamp + ","
+				+ "\"message\":{"
+				+ "\"sender\":{\"user_id\":" + chatId + ",\"name\":\"user\",\"username\":null},"
+				+ "\"recipient\":{\"chat_id\":" + chatId + ",\"chat_type\":\"dialog\",\"user_id\":" + chatId + "},"
+				+ "\"timestamp\":" + timestamp + ","
+				+ "\"body\":{\"mid\":\"mid." + chatId + "\",\"seq\":" + chatId + ",\"text\":null,"
+				+ "\"attachments\":[{\"type\":\"image\",\"payload\":{\"photo_id\":" + chatId + ",\"token\":\"token\",\"url\":\"" + imageUrl + "\"}}]}}}");
+	}
+
+	void addBotStartedUpdate(long chatId) {
+		updates.add("{\"update_type\":\"bot_started\",\"timestamp\":" + System.currentTimeMillis() + ","
+				+ "\"chat_id\":" + chatId + ","
+				+ "\"user\":{\"user_id\":" + chatId + ",\"name\":\"user\",\"username\":null}}");
+	}
+
+	@Override
+	public void close() throws IOException {
+		server.shutdown();
+	}
+
+	@Override
+	public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+		HttpUrl url = request.getRequestUrl();
+		String path = url.encodedPath();
+		if (path.startsWith("/images/")) {
+			return delay(new MockResponse()
+					.setHeader("Content-Type", "image/jpeg")
+					.setBody(new Buffer().write(image)));
+		}
+		if (ThreadLocalRandom.current().nextDouble() < tooManyRequestsRate) {
+			return delay(error(429, "too.many.requests", "Too many requests"));
+		}
+		if (path.equals("/updates")) {
+			return getUpdates();
+		}
+		if (path.equals("/uploads")) {
+			return delay(json("{\"url\":\"" + server.url("/upload") + "\"}"));
+		}
+		if (path.equals("/upload")) {
+			return delay(json("{\"photos\":{\"photo\":{\"token\":\"photo." + tokens.incrementAndGet() + "\"}}}"));
+		}
+		if (path.equals("/messages")) {
+			return sendMessage(Long.parseLong(url.queryParameter("chat_id")), request.getBody().readUtf8());
+		}
+		if (path.startsWith("/chats/")) {
+			return delay(getChat(Long.parseLong(path.substring("/chats/".length()))));
+		}
+		return error(404, "not.found", "Unknown path " + path);
+	}
+
+	@NonNull
+	private MockResponse getUpdates() throws InterruptedException {
+		List<String> batch = new ArrayList<>();
+		String first = updates.poll(LONG_POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+		if (first != null) {
+			batch.add(first);
+			updates.drainTo(batch, UPDATES_LIMIT - 1);
+		}
+		return delay(json("{\"updates\":[" + String.join(",", batch) + "],\"marker\":" + marker.addAndGet(batch.size()) + "}"));
+	}
+
+	@NonNull
+	private MockResponse sendMessage(long chatId, @NonNull String body) {
+		if (!body.contains("\"type\":\"image\"")) {
+			listener.onTextDelivered(chatId);
+			return delay(messageResult(chatId));
+		}
+		if (notReadyChats.putIfAbsent(chatId, Boolean.TRUE) == null && ThreadLocalRandom.current().nextDouble() < attachmentNotReadyRate) {
+			return delay(error(400, "attachment.not.ready", "Key: errors.process.attachment.file.not.processed"));
+		}
+		listener.onPhotoDelivered(chatId);
+		return delay(messageResult(chatId));
+	}
+
+	@NonNull
+	private MockResponse getChat(long chatId) {
+		String iconUrl = server.url("/images/" + run + "/" + chatId + ".jpg").toString();
+		return json("{\"chat_id\":" + chatId + ",\"type\":\"dialog\",\"status\":\"active\",\"title\":null,"
+				+ "\"icon\":{\"url\":\"" + iconUrl + "\"},\"last_event_time\":" + System.currentTimeMillis() + ","
+				+ "\"participants_count\":2,\"is_public\":false}");
+	}
+
+	@NonNull
+	private MockResponse messageResult(long chatId) {
+		return json("{\"message\":{"
+				+ "\"recipient\":{\"chat_id\":" + chatId + ",\"chat_type\":\"dialog\",\"user_id\":" + chatId + "},"
+				+ "\"timestamp\":" + System.currentTimeMillis() + ","
+				+ "\"body\":{\"mid\":\"mid.bot." + chatId + "\",\"seq\":0,\"text\":null}}}");
+	}
+
+	@NonNull
+	private MockResponse delay(@NonNull MockResponse response) {
+		return response.setHeadersDelay(latency, TimeUnit.MILLISECONDS);
+	}
+
+	@NonNull
+	private static MockResponse json(@NonNull String body) {
+		return new MockResponse()
+				.setHeader("Content-Type", "application/json; charset=utf-8")
+				.setBody(body);
+	}
+
+	@NonNull
+	private static MockResponse error(int code, @NonNull String error, @NonNull String message) {
+		return json("{\"code\":\"" + error + "\",\"message\":\"" + message + "\"}").setResponseCode(code);
+	}
+
+	@NonNull
+	private static byte[] createImage() throws IOException {
+		BufferedImage image = new BufferedImage(IMAGE_WIDTH, IMAGE_HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setPaint(new GradientPaint(0, 0, Color.BLUE, IMAGE_WIDTH, IMAGE_HEIGHT, Color.WHITE));
+		graphics.fillRect(0, 0, IMAGE_WIDTH, IMAGE_HEIGHT);
+		graphics.dispose();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpg", output);
+		return output.toByteArray();
+	}
+
+}
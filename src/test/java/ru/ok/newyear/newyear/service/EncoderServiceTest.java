@@ -0,0 +1,108 @@
+package ru.ok.newyear.newyear.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EncoderServiceTest {
+
+	private static final int WIDTH = 320;
+	private static final int HEIGHT = 240;
+
+	@TempDir
+	File directory;
+
+	private final BufferedImage image = createImage();
+
+	@Test
+	void lowersQualityUntilOutputFits() {
+		long unlimited = encode(new EncoderService(1, 0.75f, 0.3f, 0, Subsampling.YUV420, true, false), "unlimited.jpg");
+		long lowest = encode(new EncoderService(1, 0.3f, 0.3f, 0, Subsampling.YUV420, true, false), "lowest.jpg");
+
+		long limited = encode(new EncoderService(1, 0.75f, 0.3f, unlimited - 1, Subsampling.YUV420, true, false), "limited.jpg");
+
+		assertTrue(limited < unlimited);
+		assertTrue(limited > lowest);
+	}
+
+	@Test
+	void stopsAtMinQuality() {
+		long lowest = encode(new EncoderService(1, 0.3f, 0.3f, 0, Subsampling.YUV420, true, false), "lowest.jpg");
+
+		long limited = encode(new EncoderService(1, 0.75f, 0.3f, 1, Subsampling.YUV420, true, false), "limited.jpg");
+
+		assertEquals(lowest, limited);
+	}
+
+	@Test
+	void zeroMaxSizeDisablesLimit() {
+		long unlimited = encode(new EncoderService(1, 0.75f, 0.3f, 0, Subsampling.YUV420, true, false), "unlimited.jpg");
+		long lowest = encode(new EncoderService(1, 0.3f, 0.3f, 0, Subsampling.YUV420, true, false), "lowest.jpg");
+
+		assertTrue(unlimited > lowest);
+	}
+
+	@Test
+	void encodesDecodableImages() throws IOException {
+		for (Subsampling subsampling : Subsampling.values()) {
+			for (boolean progressive : new boolean[]{false, true}) {
+				File file = new File(directory, String.format("%s-%b.jpg", subsampling, progressive));
+				EncoderService encoderService = new EncoderService(1, 0.75f, 0.5f, 0, subsampling, true, progressive);
+
+				assertTrue(encoderService.encode(image, file));
+				encoderService.destroy();
+
+				BufferedImage decoded = ImageIO.read(file);
+				assertNotNull(decoded, file.getName());
+				assertEquals(WIDTH, decoded.getWidth());
+				assertEquals(HEIGHT, decoded.getHeight());
+			}
+		}
+	}
+
+	@Test
+	void reusesPooledWriter() {
+		EncoderService encoderService = new EncoderService(2, 0.75f, 0.5f, 0, Subsampling.YUV420, true, false);
+
+		assertTrue(encoderService.encode(image, new File(directory, "first.jpg")));
+		assertTrue(encoderService.encode(image, new File(directory, "second.jpg")));
+
+		assertEquals(1, encoderService.getPooledWriterCount());
+		encoderService.destroy();
+	}
+
+	@Test
+	void rejectsQualityOutOfBounds() {
+		assertThrows(IllegalArgumentException.class, () -> new EncoderService(1, 75, 0.5f, 0, Subsampling.YUV420, true, false));
+		assertThrows(IllegalArgumentException.class, () -> new EncoderService(1, 0.75f, -1, 0, Subsampling.YUV420, true, false));
+	}
+
+	private long encode(EncoderService encoderService, String name) {
+		File file = new File(directory, name);
+		assertTrue(encoderService.encode(image, file));
+		encoderService.destroy();
+		return file.length();
+	}
+
+	private static BufferedImage createImage() {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+		Random random = new Random(0);
+		for (int x = 0; x < WIDTH; x++) {
+			for (int y = 0; y < HEIGHT; y++) {
+				image.setRGB(x, y, random.nextInt());
+			}
+		}
+		return image;
+	}
+
+}
@@ -0,0 +1,74 @@
+package ru.ok.newyear.newyear.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JanitorServiceTest {
+
+	private static final long MAX_AGE = 3600;
+	private static final long MAX_SIZE = 2500;
+
+	@TempDir
+	File directory;
+
+	private JanitorService janitorService;
+
+	@BeforeEach
+	void setUp() {
+		janitorService = new JanitorService(TimeUnit.DAYS.toSeconds(1), MAX_AGE, MAX_SIZE);
+	}
+
+	@AfterEach
+	void tearDown() {
+		janitorService.destroy();
+	}
+
+	@Test
+	void deletesFilesOlderThanMaxAge() throws IOException {
+		File old = createFile("old.jpg", 100, TimeUnit.HOURS.toMillis(2));
+		File fresh = createFile("fresh.jpg", 100, TimeUnit.MINUTES.toMillis(1));
+
+		janitorService.clean(directory);
+
+		assertFalse(old.exists());
+		assertTrue(fresh.exists());
+	}
+
+	@Test
+	void deletesOldestFilesOverMaxSize() throws IOException {
+		File oldest = createFile("oldest.jpg", 1000, TimeUnit.MINUTES.toMillis(3));
+		File older = createFile("older.jpg", 1000, TimeUnit.MINUTES.toMillis(2));
+		File newer = createFile("newer.jpg", 1000, TimeUnit.MINUTES.toMillis(1));
+
+		janitorService.clean(directory);
+
+		assertFalse(oldest.exists());
+		assertTrue(older.exists());
+		assertTrue(newer.exists());
+	}
+
+	@Test
+	void ignoresMissingDirectory() {
+		janitorService.clean(new File(directory, "missing"));
+	}
+
+	private File createFile(String name, long size, long age) throws IOException {
+		File file = new File(directory, name);
+		try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+			output.setLength(size);
+		}
+		assertTrue(file.setLastModified(System.currentTimeMillis() - age));
+		return file;
+	}
+
+}